@@ -0,0 +1,149 @@
+package querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * readOnly 트랜잭션은 replica로, 그 외(쓰기, 벌크 업데이트, 트랜잭션 밖)는 primary로 보낸다.
+ *
+ * <p>트랜잭션의 readOnly 여부는 커넥션을 얻는 시점에 결정되어 있어야 하므로
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}로 감싸서 사용한다.
+ */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+    private final long readYourWritesNanos;
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    //key별로 커넥션을 내준 횟수 (모니터링/테스트용)
+    private final Map<String, LongAdder> routedCounts = new HashMap<>();
+
+    //마지막 쓰기 트랜잭션이 끝난 시각 (스레드 = 요청 세션 단위)
+    private final ThreadLocal<Long> lastWriteNanos = new ThreadLocal<>();
+
+    public ReplicationRoutingDataSource(HikariDataSource primary,
+                                        List<HikariDataSource> replicaList,
+                                        Duration readYourWritesWindow) {
+
+        this.primary = primary;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        routedCounts.put(PRIMARY, new LongAdder());
+
+        for (int i = 0; i < replicaList.size(); i++) {
+            String key = "replica" + i;
+            replicaKeys.add(key);
+            replicas.put(key, replicaList.get(i));
+            targets.put(key, replicaList.get(i));
+            routedCounts.put(key, new LongAdder());
+        }
+
+        this.readYourWritesNanos = readYourWritesWindow.toNanos();
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        String key = lookupKey();
+        routedCounts.get(key).increment();
+        return key;
+    }
+
+    public long getRoutedCount(String key) {
+        LongAdder count = routedCounts.get(key);
+        return count == null ? 0 : count.sum();
+    }
+
+    //현재 스레드가 read-your-writes window 안이라 읽기도 primary로 가는지
+    public boolean isPinnedToPrimary() {
+        Long writtenAt = lastWriteNanos.get();
+        return writtenAt != null && System.nanoTime() - writtenAt < readYourWritesNanos;
+    }
+
+    private String lookupKey() {
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            markWrite();
+            return PRIMARY;
+        }
+
+        //방금 쓴 데이터가 replica에 아직 반영되지 않았을 수 있으므로 primary에서 읽는다
+        if (isPinnedToPrimary()) {
+            return PRIMARY;
+        }
+
+        return replicaKeys.isEmpty() ? PRIMARY : leastLoadedReplica();
+    }
+
+    private void markWrite() {
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+
+        lastWriteNanos.set(System.nanoTime());
+
+        //커밋 시점부터 다시 window를 잰다
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lastWriteNanos.set(System.nanoTime());
+                }
+            });
+        }
+    }
+
+    //활성 커넥션 수가 가장 적은 replica, 동률이면 순서를 돌려가며 고른다
+    private String leastLoadedReplica() {
+
+        int size = replicaKeys.size();
+        int start = Math.floorMod(rotation.getAndIncrement(), size);
+
+        String selected = null;
+        int minActive = Integer.MAX_VALUE;
+
+        for (int i = 0; i < size; i++) {
+            String key = replicaKeys.get((start + i) % size);
+            int active = activeConnections(replicas.get(key));
+            if (active < minActive) {
+                minActive = active;
+                selected = key;
+            }
+        }
+        return selected;
+    }
+
+    private int activeConnections(HikariDataSource dataSource) {
+
+        //풀은 첫 getConnection 때 만들어지므로 그 전에는 null
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    @Override
+    public void close() {
+        primary.close();
+        replicas.values().forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,50 @@
+package querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(prefix = "querydsl.routing", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(RoutingDataSourceProperties.class)
+public class RoutingDataSourceConfig {
+
+    @Bean
+    public ReplicationRoutingDataSource routingDataSource(RoutingDataSourceProperties properties) {
+
+        HikariDataSource primary = hikari("primary", properties.getPrimary());
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            replicas.add(hikari("replica" + i, properties.getReplicas().get(i)));
+        }
+
+        return new ReplicationRoutingDataSource(primary, replicas, properties.getReadYourWritesWindow());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicationRoutingDataSource routingDataSource) {
+
+        //트랜잭션 시작 시점이 아니라 실제 쿼리 시점에 커넥션을 얻어야 readOnly 여부로 라우팅된다
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private HikariDataSource hikari(String poolName, RoutingDataSourceProperties.Node node) {
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(poolName);
+        dataSource.setJdbcUrl(node.getUrl());
+        dataSource.setUsername(node.getUsername());
+        dataSource.setPassword(node.getPassword());
+        dataSource.setMaximumPoolSize(node.getMaximumPoolSize());
+        return dataSource;
+    }
+}
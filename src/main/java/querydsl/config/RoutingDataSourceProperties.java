@@ -0,0 +1,44 @@
+package querydsl.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * querydsl.routing.* 설정.
+ *
+ * <pre>
+ * querydsl.routing.enabled=true
+ * querydsl.routing.primary.url=jdbc:h2:mem:primary
+ * querydsl.routing.replicas[0].url=jdbc:h2:mem:replica1
+ * querydsl.routing.replicas[1].url=jdbc:h2:mem:replica2
+ * querydsl.routing.read-your-writes-window=1s
+ * </pre>
+ *
+ * <p>replica에는 primary의 스키마와 데이터가 복제되어 있어야 한다.
+ * 로컬에서는 모든 노드를 같은 H2 메모리 DB(jdbc:h2:mem:routing;DB_CLOSE_DELAY=-1)로 두고
+ * 커넥션 풀만 나누어 라우팅을 확인한다.
+ */
+@Data
+@ConfigurationProperties(prefix = "querydsl.routing")
+public class RoutingDataSourceProperties {
+
+    private boolean enabled;
+    private Node primary = new Node();
+    private List<Node> replicas = new ArrayList<>();
+
+    //같은 스레드에서 쓰기 트랜잭션이 끝난 뒤 이 시간 동안은 읽기도 primary로 보낸다
+    private Duration readYourWritesWindow = Duration.ofSeconds(1);
+
+    @Data
+    public static class Node {
+
+        private String url;
+        private String username = "sa";
+        private String password = "";
+        private int maximumPoolSize = 10;
+    }
+}
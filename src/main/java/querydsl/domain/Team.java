@@ -4,6 +4,7 @@ import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -20,6 +21,8 @@ public class Team {
     @Column(name = "team_id")
     private Long id;
     private String name;
+    //여러 team의 memberList를 in절 한번으로 초기화
+    @BatchSize(size = 100)
     @OneToMany(mappedBy = "team")
     List<Member> memberList = new ArrayList<>();
 
@@ -9,4 +9,15 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+
+    //캐시 키 등으로 쓰기위한 사본 > 쿼리 조건과 같아야 하므로 값은 가공하지 않는다
+    public MemberSearchCondition copy() {
+
+        MemberSearchCondition msc = new MemberSearchCondition();
+        msc.setMemberName(memberName);
+        msc.setTeamName(teamName);
+        msc.setAgeGoe(ageGoe);
+        msc.setAgeLoe(ageLoe);
+        return msc;
+    }
 }
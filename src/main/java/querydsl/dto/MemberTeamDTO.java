@@ -0,0 +1,14 @@
+package querydsl.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//MemberFetchPlan에 없는 속성은 null
+@Data
+@NoArgsConstructor
+public class MemberTeamDTO {
+
+    private String name;
+    private Integer age;
+    private String teamName;
+}
@@ -0,0 +1,126 @@
+package querydsl.inspection;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statement 실행 시간을 재서 {@link SlowQueryRecorder}에 넘긴다.
+ * PreparedStatement의 set* 호출로 바인딩된 파라미터도 함께 모은다.
+ */
+public class InspectingDataSource extends DelegatingDataSource {
+
+    private final SlowQueryRecorder recorder;
+
+    public InspectingDataSource(DataSource targetDataSource, SlowQueryRecorder recorder) {
+        super(targetDataSource);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return proxy(Connection.class, new ConnectionHandler(connection));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InspectingDataSource.class.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            Object result = InspectingDataSource.invoke(target, method, args);
+
+            if (result instanceof CallableStatement) {
+                return proxy(CallableStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+            }
+            if (result instanceof PreparedStatement) {
+                return proxy(PreparedStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+            }
+            if (result instanceof Statement) {
+                return proxy(Statement.class, new StatementHandler((Statement) result, null));
+            }
+            return result;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+
+        private StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            String name = method.getName();
+
+            //setString(1, "member1"), setNull(2, Types.INTEGER) ...
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            }
+
+            if (!name.startsWith("execute")) {
+                return InspectingDataSource.invoke(target, method, args);
+            }
+
+            //Statement.execute(sql)는 실행할 sql을 인자로 받는다
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            long start = System.nanoTime();
+            try {
+                return InspectingDataSource.invoke(target, method, args);
+            } finally {
+                long elapsedNanos = System.nanoTime() - start;
+                if (recorder.isSlow(elapsedNanos)) {
+                    recorder.record(sql, new ArrayList<>(parameters.values()), elapsedNanos);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package querydsl.inspection;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 느린 쿼리 검사 설정.
+ * {@link SlowQueryEndpoint}는 actuator가 클래스패스에 있을때만 등록한다.
+ * org.springframework.boot:spring-boot-starter-actuator는 optional(compileOnly) 의존성으로 선언한다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "querydsl.inspection", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(QueryInspectionProperties.class)
+public class QueryInspectionConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public SlowQueryRecorder slowQueryRecorder(QueryInspectionProperties properties) {
+        return new SlowQueryRecorder(properties);
+    }
+
+    //JPA가 쓰는 dataSource 빈만 감싼다 (라우팅 설정의 하위 DataSource는 제외)
+    @Bean
+    public static BeanPostProcessor inspectingDataSourcePostProcessor(ObjectProvider<SlowQueryRecorder> recorder) {
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+
+                if (!(bean instanceof DataSource) || !"dataSource".equals(beanName)) {
+                    return bean;
+                }
+
+                SlowQueryRecorder slowQueryRecorder = recorder.getObject();
+                slowQueryRecorder.setExplainDataSource((DataSource) bean);
+                return new InspectingDataSource((DataSource) bean, slowQueryRecorder);
+            }
+        };
+    }
+
+    //클래스 이름으로 확인해야 actuator가 없을때 SlowQueryEndpoint를 로딩하지 않는다
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class SlowQueryEndpointConfig {
+
+        @Bean
+        public SlowQueryEndpoint slowQueryEndpoint(SlowQueryRecorder recorder) {
+            return new SlowQueryEndpoint(recorder);
+        }
+    }
+}
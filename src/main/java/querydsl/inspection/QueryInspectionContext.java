@@ -0,0 +1,55 @@
+package querydsl.inspection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 실행중인 JPQL을 스레드에 담아두어 JDBC 단에서 SQL과 함께 기록할 수 있게 한다.
+ * 살아있는 {@link SlowQueryRecorder}가 없으면 JPQL 문자열을 만들지 않는다.
+ */
+public final class QueryInspectionContext {
+
+    private static final ThreadLocal<String> CURRENT_JPQL = new ThreadLocal<>();
+    private static final Scope NOOP = () -> { };
+
+    //JVM 전역이므로 recorder 수로 관리 > 한 컨텍스트가 닫혀도 다른 컨텍스트의 검사는 유지되고, 모두 닫히면 꺼진다
+    private static final AtomicInteger RECORDERS = new AtomicInteger();
+
+    private QueryInspectionContext() {
+    }
+
+    public static Scope open(Supplier<String> jpql) {
+
+        if (RECORDERS.get() == 0) {
+            return NOOP;
+        }
+
+        String previous = CURRENT_JPQL.get();
+        CURRENT_JPQL.set(jpql.get());
+        return () -> {
+            if (previous == null) {
+                CURRENT_JPQL.remove();
+            } else {
+                CURRENT_JPQL.set(previous);
+            }
+        };
+    }
+
+    static String currentJpql() {
+        return CURRENT_JPQL.get();
+    }
+
+    static void recorderStarted() {
+        RECORDERS.incrementAndGet();
+    }
+
+    static void recorderStopped() {
+        RECORDERS.decrementAndGet();
+    }
+
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,26 @@
+package querydsl.inspection;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * querydsl.inspection.* 설정.
+ *
+ * <pre>
+ * querydsl.inspection.enabled=true
+ * querydsl.inspection.slow-threshold=100ms
+ * querydsl.inspection.top-n=20
+ * management.endpoints.web.exposure.include=slowqueries
+ * </pre>
+ */
+@Data
+@ConfigurationProperties(prefix = "querydsl.inspection")
+public class QueryInspectionProperties {
+
+    private boolean enabled;
+    private Duration slowThreshold = Duration.ofMillis(100);
+    private int topN = 20;
+    private boolean explain = true;
+}
@@ -0,0 +1,32 @@
+package querydsl.inspection;
+
+import lombok.Data;
+
+//SQL 모양(파라미터는 ?)별 느린 쿼리 통계
+@Data
+public class SlowQuery {
+
+    private final String sql;
+    private String jpql;
+    private String lastParameters;
+    private long count;
+    private long maxMillis;
+    private long totalMillis;
+    private String plan;
+
+    public SlowQuery(String sql) {
+        this.sql = sql;
+    }
+
+    SlowQuery copy() {
+
+        SlowQuery copy = new SlowQuery(sql);
+        copy.setJpql(jpql);
+        copy.setLastParameters(lastParameters);
+        copy.setCount(count);
+        copy.setMaxMillis(maxMillis);
+        copy.setTotalMillis(totalMillis);
+        copy.setPlan(plan);
+        return copy;
+    }
+}
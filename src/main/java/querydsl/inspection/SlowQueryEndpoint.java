@@ -0,0 +1,29 @@
+package querydsl.inspection;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+
+//GET /actuator/slowqueries, DELETE /actuator/slowqueries
+//spring-boot-starter-actuator가 있을때만 등록 (QueryInspectionConfig), management.endpoints.web.exposure.include=slowqueries 로 노출
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+
+    private final SlowQueryRecorder recorder;
+
+    public SlowQueryEndpoint(SlowQueryRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @ReadOperation
+    public List<SlowQuery> slowQueries() {
+        return recorder.getSlowest();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        recorder.clear();
+    }
+}
@@ -0,0 +1,169 @@
+package querydsl.inspection;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * threshold를 넘은 쿼리를 로그로 남기고, 가장 느린 SQL 모양 topN개를 보관한다.
+ * H2에서는 처음 잡힌 모양에 대해 EXPLAIN 결과도 함께 저장한다.
+ */
+@Slf4j
+public class SlowQueryRecorder {
+
+    private final long thresholdNanos;
+    private final int topN;
+    private final boolean explain;
+    private DataSource explainDataSource;
+
+    //EXPLAIN은 쿼리를 실행한 스레드(커넥션을 쥐고있는)가 아닌 별도 스레드에서
+    private final ExecutorService explainExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "slow-query-explain");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //느린 쿼리만 들어오므로 단순하게 synchronized로 관리
+    private final Map<String, SlowQuery> slowest = new HashMap<>();
+
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    public SlowQueryRecorder(QueryInspectionProperties properties) {
+        this.thresholdNanos = properties.getSlowThreshold().toNanos();
+        this.topN = properties.getTopN();
+        this.explain = properties.isExplain();
+        QueryInspectionContext.recorderStarted();
+    }
+
+    //EXPLAIN은 검사 대상이 아닌 원래 DataSource로 실행한다
+    void setExplainDataSource(DataSource explainDataSource) {
+        this.explainDataSource = explainDataSource;
+    }
+
+    //빠른 쿼리는 파라미터를 복사하기 전에 걸러낸다
+    boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    void record(String sql, List<Object> parameters, long elapsedNanos) {
+
+        if (sql == null || !isSlow(elapsedNanos)) {
+            return;
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        String jpql = QueryInspectionContext.currentJpql();
+        log.warn("slow query {}ms\n jpql: {}\n sql: {}\n parameters: {}", elapsedMillis, jpql, sql, parameters);
+
+        boolean needsPlan;
+        synchronized (this) {
+            SlowQuery slowQuery = slowest.get(sql);
+            if (slowQuery == null) {
+                if (slowest.size() >= topN && !evictFasterThan(elapsedMillis)) {
+                    return;
+                }
+                slowQuery = new SlowQuery(sql);
+                slowest.put(sql, slowQuery);
+            }
+            slowQuery.setCount(slowQuery.getCount() + 1);
+            slowQuery.setTotalMillis(slowQuery.getTotalMillis() + elapsedMillis);
+            slowQuery.setMaxMillis(Math.max(slowQuery.getMaxMillis(), elapsedMillis));
+            slowQuery.setLastParameters(String.valueOf(parameters));
+            if (jpql != null) {
+                slowQuery.setJpql(jpql);
+            }
+            needsPlan = explain && slowQuery.getPlan() == null;
+            if (needsPlan) {
+                slowQuery.setPlan("");
+            }
+        }
+
+        if (needsPlan) {
+            explainExecutor.execute(() -> {
+                String plan = explain(sql, parameters);
+                synchronized (this) {
+                    SlowQuery slowQuery = slowest.get(sql);
+                    if (slowQuery != null) {
+                        slowQuery.setPlan(plan == null ? "" : plan);
+                    }
+                }
+            });
+        }
+    }
+
+    public synchronized List<SlowQuery> getSlowest() {
+
+        return slowest.values().stream()
+                .sorted(Comparator.comparingLong(SlowQuery::getMaxMillis).reversed())
+                .map(SlowQuery::copy)
+                .collect(Collectors.toList());
+    }
+
+    public synchronized void clear() {
+        slowest.clear();
+    }
+
+    public void shutdown() {
+        if (running.compareAndSet(true, false)) {
+            QueryInspectionContext.recorderStopped();
+        }
+        explainExecutor.shutdownNow();
+    }
+
+    //가장 빠른 모양이 이번 쿼리보다 빠르면 자리를 내준다
+    private boolean evictFasterThan(long elapsedMillis) {
+
+        SlowQuery fastest = slowest.values().stream()
+                .min(Comparator.comparingLong(SlowQuery::getMaxMillis))
+                .orElse(null);
+
+        if (fastest == null || fastest.getMaxMillis() >= elapsedMillis) {
+            return false;
+        }
+        slowest.remove(fastest.getSql());
+        return true;
+    }
+
+    private String explain(String sql, List<Object> parameters) {
+
+        if (explainDataSource == null || !sql.trim().toLowerCase().startsWith("select")) {
+            return null;
+        }
+
+        try (Connection connection = explainDataSource.getConnection()) {
+            if (!"H2".equals(connection.getMetaData().getDatabaseProductName())) {
+                return null;
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement("explain " + sql)) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    ps.setObject(i + 1, parameters.get(i));
+                }
+
+                List<String> planList = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        planList.add(rs.getString(1));
+                    }
+                }
+                return String.join("\n", planList);
+            }
+        } catch (Exception e) {
+            log.debug("failed to explain {}", sql, e);
+            return null;
+        }
+    }
+}
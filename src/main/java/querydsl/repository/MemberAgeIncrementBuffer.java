@@ -0,0 +1,190 @@
+package querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static querydsl.domain.QMember.*;
+
+/**
+ * member.age 증가분을 메모리에 모아두었다가 주기적으로 한번에 반영한다.
+ * 같은 row에 대한 잦은 read-modify-write UPDATE로 인한 row lock 대기를 없애기 위함.
+ *
+ * <p>증가분 묶음(같은 증가분, in절 chunk)마다 따로 커밋하므로 한 member의 실패가 다른 member의 반영을 막지 않는다.
+ * 실패한 chunk는 member 하나씩 다시 시도하고, {@link #MAX_FLUSH_ATTEMPTS}번 연속 실패한 증가분은 로그를 남기고 버린다.
+ */
+@Slf4j
+@Component
+public class MemberAgeIncrementBuffer {
+
+    //한 UPDATE의 in절 크기 상한
+    private static final int FLUSH_CHUNK_SIZE = 1000;
+
+    //이 횟수만큼 연속으로 반영에 실패한 증가분은 더 이상 재시도하지 않는다 (예: age 컬럼 overflow)
+    static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    //member id별 누적 증가분 > LongAdder는 내부적으로 셀을 나눠 경합을 줄인다
+    //한 flush 주기동안 증가가 없던 엔트리는 flush때 지운다
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    //member id별 연속 flush 실패 횟수 (flush 스레드에서만 접근)
+    private final Map<Long, Integer> failures = new ConcurrentHashMap<>();
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final MemberCountCache memberCountCache;
+
+    public MemberAgeIncrementBuffer(EntityManager em,
+                                    PlatformTransactionManager transactionManager,
+                                    MemberCountCache memberCountCache) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        //호출한 쪽 트랜잭션과 무관하게 묶음마다 따로 커밋한다
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.memberCountCache = memberCountCache;
+    }
+
+    //트랜잭션 안에서 호출되면 그 트랜잭션이 커밋된 뒤에만 쌓는다 (롤백되면 버린다)
+    public void increment(Long memberId, int delta) {
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(memberId, delta);
+                }
+            });
+            return;
+        }
+        add(memberId, delta);
+    }
+
+    private void add(Long memberId, int delta) {
+
+        LongAdder adder = pending.computeIfAbsent(memberId, id -> new LongAdder());
+        adder.add(delta);
+
+        //flush가 비어있던 엔트리를 그 사이에 지웠다면 새 엔트리에 다시 쌓는다
+        //(지워진 adder는 더 이상 읽히지 않으므로 중복 반영되지 않는다)
+        if (pending.get(memberId) != adder) {
+            add(memberId, delta);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${querydsl.age-increment.flush-interval-ms:1000}")
+    public void flush() {
+
+        Map<Long, Long> drained = new HashMap<>();
+        pending.forEach((memberId, adder) -> {
+            //sumThenReset 도중 들어온 증가분은 이번 또는 다음 flush에 반영된다
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                drained.put(memberId, delta);
+            } else if (adder.sum() == 0) {
+                pending.remove(memberId, adder);
+            }
+        });
+
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        //같은 증가분끼리 묶어서 update member set age = age + ? where member_id in (...)
+        Map<Long, List<Long>> idsByDelta = new HashMap<>();
+        drained.forEach((memberId, delta) -> idsByDelta.computeIfAbsent(delta, d -> new ArrayList<>()).add(memberId));
+
+        idsByDelta.forEach((delta, memberIds) -> {
+            for (int from = 0; from < memberIds.size(); from += FLUSH_CHUNK_SIZE) {
+                flushChunk(delta, memberIds.subList(from, Math.min(from + FLUSH_CHUNK_SIZE, memberIds.size())));
+            }
+        });
+
+        //증가분이 커밋된 뒤에 무효화
+        memberCountCache.invalidateAll();
+    }
+
+    private void flushChunk(Long delta, List<Long> memberIds) {
+
+        try {
+            update(delta, memberIds);
+            memberIds.forEach(failures::remove);
+            return;
+        } catch (RuntimeException e) {
+            if (memberIds.size() == 1) {
+                failed(memberIds.get(0), delta, e);
+                return;
+            }
+            log.warn("failed to flush age increment {} for {} members, retrying one by one", delta, memberIds.size(), e);
+        }
+
+        //어느 member 때문에 실패했는지 모르므로 하나씩 따로 커밋
+        for (Long memberId : memberIds) {
+            try {
+                update(delta, Collections.singletonList(memberId));
+                failures.remove(memberId);
+            } catch (RuntimeException e) {
+                failed(memberId, delta, e);
+            }
+        }
+    }
+
+    private void update(Long delta, List<Long> memberIds) {
+
+        transactionTemplate.executeWithoutResult(status -> queryFactory
+                .update(member)
+                .set(member.age, member.age.add(delta))
+                .where(member.id.in(memberIds))
+                .execute());
+    }
+
+    //실패한 증가분은 다음 flush에서 다시 시도하고, 계속 실패하면 버린다
+    private void failed(Long memberId, Long delta, RuntimeException e) {
+
+        int attempts = failures.merge(memberId, 1, Integer::sum);
+        if (attempts >= MAX_FLUSH_ATTEMPTS) {
+            failures.remove(memberId);
+            log.error("dropping age increment {} for member {} after {} failed flushes", delta, memberId, attempts, e);
+            return;
+        }
+        log.warn("failed to flush age increment {} for member {} (attempt {}), will retry", delta, memberId, attempts, e);
+        pending.computeIfAbsent(memberId, id -> new LongAdder()).add(delta);
+    }
+
+    //종료 전에 남은 증가분을 반영 > 실패하면 유실되는 값을 로그로 남긴다
+    @PreDestroy
+    public void flushOnShutdown() {
+
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("failed to flush member age increments on shutdown", e);
+        }
+
+        Map<Long, Long> lost = new HashMap<>();
+        pending.forEach((memberId, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                lost.put(memberId, delta);
+            }
+        });
+        if (!lost.isEmpty()) {
+            log.error("member age increments not flushed on shutdown, lost={}", lost);
+        }
+    }
+}
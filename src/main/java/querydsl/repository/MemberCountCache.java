@@ -0,0 +1,117 @@
+package querydsl.repository;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import querydsl.dto.MemberSearchCondition;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 검색조건별 totalCount 캐시.
+ * 페이지를 넘길때마다 같은 조건으로 count 쿼리를 다시 날리지 않도록 한다.
+ *
+ * <p>Member/Team 엔티티 쓰기는 {@link MemberCountCacheInvalidator}가 {@link #invalidate()}를 호출해
+ * 트랜잭션이 끝날때 전부 무효화한다. JPQL 벌크 update/delete는 엔티티 콜백을 타지 않으므로
+ * 같은 트랜잭션 안에서 직접 {@link #invalidate()}를 호출해야 한다.
+ */
+@Component
+public class MemberCountCache {
+
+    private static final int MAX_ENTRIES = 1024;
+
+    //현재 트랜잭션에서 member/team을 변경했다는 표시 (트랜잭션 리소스 key)
+    private static final Object WRITTEN_KEY = new Object();
+
+    private final Map<MemberSearchCondition, CachedTotal> totals = new ConcurrentHashMap<>();
+
+    //무효화 세대 > count 쿼리 도중 무효화가 일어나면 그 결과는 캐시에 넣지 않는다
+    private final AtomicLong generation = new AtomicLong();
+
+    public long getTotal(MemberSearchCondition msc, Duration maxStaleness, LongSupplier countQuery) {
+
+        //커밋되지 않은 자기 변경이 보이는 트랜잭션에서는 캐시를 읽지도 채우지도 않는다
+        if (TransactionSynchronizationManager.hasResource(WRITTEN_KEY)) {
+            return countQuery.getAsLong();
+        }
+
+        MemberSearchCondition key = msc.copy();
+        long now = System.nanoTime();
+
+        CachedTotal cached = totals.get(key);
+        if (cached != null && now - cached.countedAt <= maxStaleness.toNanos()) {
+            return cached.total;
+        }
+
+        long startGeneration = generation.get();
+        long total = countQuery.getAsLong();
+
+        evictIfFull(now, maxStaleness.toNanos());
+        if (generation.get() == startGeneration) {
+            CachedTotal counted = new CachedTotal(total, now);
+            totals.put(key, counted);
+            if (generation.get() != startGeneration) {
+                totals.remove(key, counted);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 즉시 무효화하고, 트랜잭션 안이라면 커밋/롤백 후에 한번 더 무효화한다.
+     * 커밋 전 count를 다른 요청이 다시 캐시했을 수 있기 때문.
+     */
+    public void invalidate() {
+
+        invalidateAll();
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(WRITTEN_KEY)) {
+            return;
+        }
+
+        TransactionSynchronizationManager.bindResource(WRITTEN_KEY, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITTEN_KEY);
+                invalidateAll();
+            }
+        });
+    }
+
+    //가득 차면 이번 호출 기준으로 만료된 것부터 지우고, 그래도 가득이면 가장 오래 전에 센 것을 지운다
+    private void evictIfFull(long now, long maxStalenessNanos) {
+
+        if (totals.size() < MAX_ENTRIES) {
+            return;
+        }
+        totals.values().removeIf(cached -> now - cached.countedAt > maxStalenessNanos);
+        while (totals.size() >= MAX_ENTRIES) {
+            totals.entrySet().stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().countedAt))
+                    .ifPresent(oldest -> totals.remove(oldest.getKey(), oldest.getValue()));
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        totals.clear();
+    }
+
+    private static class CachedTotal {
+
+        private final long total;
+        private final long countedAt;
+
+        private CachedTotal(long total, long countedAt) {
+            this.total = total;
+            this.countedAt = countedAt;
+        }
+    }
+}
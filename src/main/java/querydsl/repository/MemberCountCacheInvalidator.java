@@ -0,0 +1,92 @@
+package querydsl.repository;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+import querydsl.domain.Member;
+import querydsl.domain.Team;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Member/Team의 insert/update/delete를 Hibernate 이벤트로 받아 {@link MemberCountCache}를 무효화한다.
+ * 엔티티가 repository 쪽 클래스에 의존하지 않도록 엔티티 리스너 대신 SessionFactory 생성 시점에 등록한다.
+ *
+ * <p>이벤트는 flush 때 발생하지만, 같은 트랜잭션의 검색 쿼리가 실행되기 전에 auto flush가 일어나므로
+ * count 캐시를 읽기 전에 트랜잭션이 '변경함'으로 표시된다.
+ */
+@Component
+class MemberCountCacheInvalidator implements HibernatePropertiesCustomizer,
+        PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final MemberCountCache memberCountCache;
+
+    MemberCountCacheInvalidator(MemberCountCache memberCountCache) {
+        this.memberCountCache = memberCountCache;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> Collections.singletonList(new ListenerIntegrator()));
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        invalidate(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        invalidate(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        invalidate(event.getEntity());
+    }
+
+    //커밋 후 처리는 MemberCountCache.invalidate가 트랜잭션 synchronization으로 한다
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void invalidate(Object entity) {
+        if (entity instanceof Member || entity instanceof Team) {
+            memberCountCache.invalidate();
+        }
+    }
+
+    private class ListenerIntegrator implements Integrator {
+
+        @Override
+        public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                              SessionFactoryServiceRegistry serviceRegistry) {
+
+            EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+            registry.appendListeners(EventType.POST_INSERT, MemberCountCacheInvalidator.this);
+            registry.appendListeners(EventType.POST_UPDATE, MemberCountCacheInvalidator.this);
+            registry.appendListeners(EventType.POST_DELETE, MemberCountCacheInvalidator.this);
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package querydsl.repository;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+//조회시 실제로 필요한 속성
+//DTO로 받을지(searchProjection) 엔티티로 받을지(searchEntities)는 호출하는 쪽이 고르고,
+//리포지토리는 고른 메서드 안에서 plan에 맞게 select 컬럼과 join만 좁힌다
+public class MemberFetchPlan {
+
+    public enum Attribute {
+        NAME, AGE, TEAM_NAME,
+        //엔티티로 받아야 하는 속성
+        TEAM, TEAM_MEMBERS
+    }
+
+    private final Set<Attribute> attributes;
+
+    private MemberFetchPlan(Set<Attribute> attributes) {
+        this.attributes = attributes;
+    }
+
+    public static MemberFetchPlan of(Attribute... attributes) {
+
+        if (attributes.length == 0) {
+            throw new IllegalArgumentException("fetch plan needs at least one attribute");
+        }
+        return new MemberFetchPlan(EnumSet.copyOf(Arrays.asList(attributes)));
+    }
+
+    public boolean contains(Attribute attribute) {
+        return attributes.contains(attribute);
+    }
+
+    public boolean needsTeam() {
+        return contains(Attribute.TEAM_NAME) || contains(Attribute.TEAM) || contains(Attribute.TEAM_MEMBERS);
+    }
+
+    public boolean needsEntity() {
+        return contains(Attribute.TEAM) || contains(Attribute.TEAM_MEMBERS);
+    }
+
+    @Override
+    public String toString() {
+        return "MemberFetchPlan" + attributes;
+    }
+}
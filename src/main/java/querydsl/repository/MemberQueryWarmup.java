@@ -0,0 +1,72 @@
+package querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import querydsl.dto.MemberSearchCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 첫 검색 요청이 JPQL 파싱/쿼리 플랜 생성 비용을 치르지 않도록
+ * 기동 직후 백그라운드에서 검색 조건의 모든 조합(2^4)을 미리 준비해둔다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "querydsl.warmup", name = "enabled", havingValue = "true")
+public class MemberQueryWarmup {
+
+    private final MemberSearchQueries queries;
+    private final TransactionTemplate transactionTemplate;
+
+    public MemberQueryWarmup(MemberSearchQueries queries, PlatformTransactionManager transactionManager) {
+        this.queries = queries;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+
+        Thread thread = new Thread(this::prepareAll, "member-query-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void prepareAll() {
+
+        long start = System.currentTimeMillis();
+
+        try {
+            List<MemberSearchCondition> mscList = searchShapes();
+            //실행하지 않고 JPQL만 파싱시켜 Hibernate 쿼리 플랜 캐시를 채운다 > 검색과 같은 쿼리 빌더를 쓴다
+            transactionTemplate.executeWithoutResult(status -> mscList.forEach(msc -> {
+                queries.searchQuery(msc).createQuery();
+                queries.countQuery(msc).createQuery();
+            }));
+            log.info("warmed up {} search shapes in {}ms", mscList.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("member query warmup failed", e);
+        }
+    }
+
+    //조건 값은 JPQL에 파라미터로 들어가므로 null 여부만 의미가 있다
+    private List<MemberSearchCondition> searchShapes() {
+
+        List<MemberSearchCondition> mscList = new ArrayList<>();
+        for (int mask = 0; mask < 16; mask++) {
+            MemberSearchCondition msc = new MemberSearchCondition();
+            msc.setMemberName((mask & 1) == 0 ? null : "warmup%");
+            msc.setTeamName((mask & 2) == 0 ? null : "warmup");
+            msc.setAgeGoe((mask & 4) == 0 ? null : 0);
+            msc.setAgeLoe((mask & 8) == 0 ? null : 0);
+            mscList.add(msc);
+        }
+        return mscList;
+    }
+}
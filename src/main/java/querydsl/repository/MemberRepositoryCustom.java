@@ -2,9 +2,12 @@ package querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import querydsl.domain.Member;
 import querydsl.dto.MemberDTO;
 import querydsl.dto.MemberSearchCondition;
+import querydsl.dto.MemberTeamDTO;
 
+import java.time.Duration;
 import java.util.List;
 
 public interface MemberRepositoryCustom {
@@ -15,4 +18,28 @@ public interface MemberRepositoryCustom {
 
     Page<MemberDTO> pagingSearch2(MemberSearchCondition msc, Pageable pageable);
 
+    //maxStaleness 이내에 같은 조건으로 세어둔 totalCount가 있으면 count 쿼리를 생략한다
+    Page<MemberDTO> pagingSearch2(MemberSearchCondition msc, Pageable pageable, Duration maxStaleness);
+
+    //조건들을 한 쿼리로 묶어 조회 > 결과는 mscList와 같은 순서로, 각각 search(msc)와 같은 결과
+    List<List<MemberDTO>> searchAll(List<MemberSearchCondition> mscList);
+
+    //조회 방식은 호출하는 쪽이 고른다 > 엔티티가 필요없으면 searchProjection, 필요하면 searchEntities
+
+    //plan에 있는 속성만 select하는 DTO 조회 > team.name이 필요할때만 team을 조인
+    //TEAM, TEAM_MEMBERS가 있는 plan은 IllegalArgumentException
+    List<MemberTeamDTO> searchProjection(MemberSearchCondition msc, MemberFetchPlan plan);
+
+    //엔티티 조회 > team이 필요하면 fetch join, team.memberList가 필요하면 batch fetch로 미리 초기화
+    //NAME, AGE는 영향이 없다 (엔티티는 항상 모든 컬럼을 읽는다), team 속성이 없으면 team은 초기화되지 않은 프록시로 남는다
+    List<Member> searchEntities(MemberSearchCondition msc, MemberFetchPlan plan);
+
+    //age 증가분을 메모리에 쌓아두고 주기적으로 한번에 반영 (write-behind)
+    //트랜잭션 안에서 호출하면 커밋된 뒤에 쌓이고, 롤백되면 버려진다
+    //반영은 호출한 트랜잭션과 별개로 일어나며, 계속 실패하는 증가분은 로그를 남기고 버려진다
+    void incrementAge(Long memberId, int delta);
+
+    //쌓인 증가분을 별도 트랜잭션으로 즉시 반영 > 벌크 업데이트이므로 이후 영속성 컨텍스트는 clear 해야한다
+    void flushAgeIncrements();
+
 }
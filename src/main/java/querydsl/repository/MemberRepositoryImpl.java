@@ -1,51 +1,95 @@
 package querydsl.repository;
 
 import com.querydsl.core.QueryResults;
-import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.CaseBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import querydsl.config.ReplicationRoutingDataSource;
+import querydsl.domain.Member;
+import querydsl.domain.Team;
 import querydsl.dto.MemberDTO;
 import querydsl.dto.MemberSearchCondition;
+import querydsl.dto.MemberTeamDTO;
 
 import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import static com.querydsl.core.types.ExpressionUtils.*;
 import static com.querydsl.core.types.Projections.*;
+import static querydsl.repository.MemberFetchPlan.Attribute.*;
+import static querydsl.repository.MemberSearchQueries.*;
 import static querydsl.domain.QMember.*;
 import static querydsl.domain.QTeam.*;
 
+//검색/페이징/카운트는 readOnly 트랜잭션 > 라우팅 설정 시 replica에서 읽는다 (합쳐지는 검색은 MemberSearchReader에서)
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    //한 쿼리의 OR 조건 개수 상한 > 그 이상은 나눠서 조회
+    private static final int SEARCH_ALL_CHUNK_SIZE = 100;
+
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchQueries queries;
+    private final MemberSearchReader memberSearchReader;
+    private final MemberAgeIncrementBuffer memberAgeIncrementBuffer;
+    private final ObjectProvider<ReplicationRoutingDataSource> routingDataSource;
+
+    //동시에 들어온 같은 검색은 쿼리 한번으로 합친다
+    private final SingleFlight<List<Object>, List<MemberDTO>> searchFlight = new SingleFlight<>();
+    private final SingleFlight<List<Object>, Page<MemberDTO>> pagingSearchFlight = new SingleFlight<>();
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em,
+                                MemberSearchQueries queries,
+                                MemberSearchReader memberSearchReader,
+                                MemberAgeIncrementBuffer memberAgeIncrementBuffer,
+                                ObjectProvider<ReplicationRoutingDataSource> routingDataSource) {
         queryFactory = new JPAQueryFactory(em);
+        this.queries = queries;
+        this.memberSearchReader = memberSearchReader;
+        this.memberAgeIncrementBuffer = memberAgeIncrementBuffer;
+        this.routingDataSource = routingDataSource;
     }
 
+    //합치기는 트랜잭션 밖(SUPPORTS)에서 한다 > 트랜잭션은 leader가 MemberSearchReader에서 시작
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<MemberDTO> search(MemberSearchCondition msc) {
 
-        return queryFactory
-                .select(fields(MemberDTO.class, member.name, member.age))
-                .from(member)
-                .where(conditionCheck(msc))
-                .fetch();
+        //합쳐진 요청끼리 list와 MemberDTO를 공유하지 않도록 복사해서 돌려준다
+        return coalesce(searchFlight, searchKey(msc), () -> memberSearchReader.search(msc)).stream()
+                .map(this::copy)
+                .collect(Collectors.toList());
     }
 
     @Override
     public Page<MemberDTO> pagingSearch(MemberSearchCondition msc, Pageable pageable) {
 
-        QueryResults<MemberDTO> results = queryFactory
-                .select(fields(MemberDTO.class, member.name, member.age))
-                .from(member)
-                .where(conditionCheck(msc))
+        JPAQuery<MemberDTO> query = queries.searchQuery(msc)
                 .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();
+                .limit(pageable.getPageSize());
+
+        QueryResults<MemberDTO> results = inspect(query, query::fetchResults);
 
         List<MemberDTO> memberList = results.getResults();
         long totalCount = results.getTotal();
@@ -54,48 +98,195 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Page<MemberDTO> pagingSearch2(MemberSearchCondition msc, Pageable pageable) {
 
-        List<MemberDTO> memberList = queryFactory
-                .select(fields(MemberDTO.class, member.name, member.age))
-                .from(member)
-                .where(conditionCheck(msc))
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
+        return coalesce(pagingSearchFlight, searchKey(msc, pageable), () -> memberSearchReader.pagingSearch2(msc, pageable))
+                .map(this::copy);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Page<MemberDTO> pagingSearch2(MemberSearchCondition msc, Pageable pageable, Duration maxStaleness) {
+
+        return coalesce(pagingSearchFlight, searchKey(msc, pageable, maxStaleness),
+                () -> memberSearchReader.pagingSearch2(msc, pageable, maxStaleness))
+                .map(this::copy);
+    }
+
+    @Override
+    public List<List<MemberDTO>> searchAll(List<MemberSearchCondition> mscList) {
+
+        //같은 조건은 한번만 조회
+        Map<MemberSearchCondition, List<MemberDTO>> resultMap = new LinkedHashMap<>();
+        for (MemberSearchCondition msc : mscList) {
+            resultMap.putIfAbsent(msc, new ArrayList<>());
+        }
+
+        List<MemberSearchCondition> distinctList = new ArrayList<>(resultMap.keySet());
+        for (int from = 0; from < distinctList.size(); from += SEARCH_ALL_CHUNK_SIZE) {
+            List<MemberSearchCondition> chunk =
+                    distinctList.subList(from, Math.min(from + SEARCH_ALL_CHUNK_SIZE, distinctList.size()));
+            searchChunk(chunk, resultMap);
+        }
+
+        return mscList.stream()
+                .map(msc -> new ArrayList<>(resultMap.get(msc)))
+                .collect(Collectors.toList());
+    }
+
+    //조건들을 OR로 묶어 한번에 조회하고, 각 row가 어느 조건에 맞는지도 DB가 case 컬럼으로 표시한다
+    //(like, 문자열 비교 규칙이 DB collation과 달라지지 않도록 메모리에서 다시 판정하지 않는다)
+    private void searchChunk(List<MemberSearchCondition> chunk, Map<MemberSearchCondition, List<MemberDTO>> resultMap) {
+
+        List<Expression<?>> selectList = new ArrayList<>(Arrays.asList(member.name, member.age));
+        List<Predicate> predicateList = new ArrayList<>();
+        boolean matchAll = false;
+        boolean joinTeam = false;
+        for (MemberSearchCondition msc : chunk) {
+            Predicate predicate = queries.conditionCheck(msc);
+            //조건이 없으면 모든 row가 맞으므로 표시 컬럼도 필요없다
+            if (predicate == null) {
+                matchAll = true;
+            } else {
+                selectList.add(new CaseBuilder().when(predicate).then(1).otherwise(0));
+            }
+            if (msc.getTeamName() != null) {
+                joinTeam = true;
+            }
+            predicateList.add(predicate);
+        }
+
+        //team.name 조건이 하나라도 있을때만 team을 조인
+        JPAQuery<Tuple> query = queryFactory.select(selectList.toArray(new Expression<?>[0])).from(member);
+        if (joinTeam) {
+            query.leftJoin(member.team, team);
+        }
+        query.where(matchAll ? null : anyOf(predicateList.toArray(new Predicate[0])));
+
+        List<Tuple> rows = inspect(query, query::fetch);
+
+        for (Tuple row : rows) {
+            String name = row.get(member.name);
+            Integer age = row.get(member.age);
 
-        JPAQuery<MemberDTO> countQuery = queryFactory
-                .select(fields(MemberDTO.class, member.name, member.age))
-                .from(member)
-                .where(conditionCheck(msc));
+            int column = 2;
+            for (int i = 0; i < chunk.size(); i++) {
+                boolean matched = predicateList.get(i) == null || row.get(column++, Integer.class) == 1;
+                if (matched) {
+                    resultMap.get(chunk.get(i)).add(new MemberDTO(name, age));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<MemberTeamDTO> searchProjection(MemberSearchCondition msc, MemberFetchPlan plan) {
+
+        if (plan.needsEntity()) {
+            throw new IllegalArgumentException(plan + " needs entities, use searchEntities");
+        }
+
+        List<Expression<?>> expressionList = new ArrayList<>();
+        if (plan.contains(NAME)) {
+            expressionList.add(member.name);
+        }
+        if (plan.contains(AGE)) {
+            expressionList.add(member.age);
+        }
+        if (plan.contains(TEAM_NAME)) {
+            expressionList.add(team.name.as("teamName"));
+        }
+
+        JPAQuery<MemberTeamDTO> query = queryFactory
+                .select(fields(MemberTeamDTO.class, expressionList.toArray(new Expression<?>[0])))
+                .from(member);
+
+        if (plan.needsTeam() || msc.getTeamName() != null) {
+            query.leftJoin(member.team, team);
+        }
+        query.where(queries.conditionCheck(msc));
+
+        return inspect(query, query::fetch);
+    }
+
+    @Override
+    public List<Member> searchEntities(MemberSearchCondition msc, MemberFetchPlan plan) {
+
+        JPAQuery<Member> query = queryFactory
+                .selectFrom(member);
+
+        //NAME, AGE는 엔티티를 그대로 읽으므로 쿼리에 영향이 없다
+        //team 프록시가 나중에 select를 날리지 않도록 필요한 경우 한번에 가져온다
+        if (plan.needsTeam()) {
+            query.leftJoin(member.team, team).fetchJoin();
+        } else if (msc.getTeamName() != null) {
+            query.leftJoin(member.team, team);
+        }
+        query.where(queries.conditionCheck(msc));
 
-        //검색된 list사이즈가 페이지의 사이즈보다 작거나 페이지가 1개일 경우
-        //카운트쿼리를 생략하고 list의 사이즈를 totalCount로 가져가는 방식
-        return PageableExecutionUtils.getPage(memberList, pageable, countQuery::fetchCount);
+        List<Member> memberList = inspect(query, query::fetch);
+
+        //컬렉션 fetch join은 row가 뻥튀기되므로, @BatchSize로 team들의 memberList를 in절로 초기화
+        if (plan.contains(TEAM_MEMBERS)) {
+            //@Data의 hashCode는 memberList까지 건드리므로 동일성으로 모은다
+            Set<Team> teamSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Member m : memberList) {
+                if (m.getTeam() != null) {
+                    teamSet.add(m.getTeam());
+                }
+            }
+            teamSet.forEach(t -> Hibernate.initialize(t.getMemberList()));
+        }
+        return memberList;
     }
 
-    private BooleanExpression conditionCheck(MemberSearchCondition msc) {
+    //메모리에만 쌓으므로 트랜잭션을 시작하지 않는다 > 호출한 쪽 트랜잭션이 있으면 커밋 후에 쌓인다
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void incrementAge(Long memberId, int delta) {
+        memberAgeIncrementBuffer.increment(memberId, delta);
+    }
 
-        return memberLk(msc.getMemberName())
-                .and(teamEq(msc.getTeamName()))
-                .and(ageGoeEq(msc.getAgeGoe()))
-                .and(ageLoeEq(msc.getAgeLoe()));
+    //flush는 자체 트랜잭션(REQUIRES_NEW)으로 커밋한다
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void flushAgeIncrements() {
+        memberAgeIncrementBuffer.flush();
     }
 
-    private BooleanExpression memberLk(String memberName) {
-        return memberName == null ? null : member.name.like(memberName);
+    private <V> V coalesce(SingleFlight<List<Object>, V> flight, List<Object> key, Supplier<V> query) {
+
+        //쓰기 트랜잭션 안에서는 flush 되지 않은 자기 변경이 보여야 하므로 합치지 않는다
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return query.get();
+        }
+
+        //read-your-writes로 primary에 묶인 스레드가 replica에서 실행된 leader 결과를 받으면 안된다
+        ReplicationRoutingDataSource routing = routingDataSource.getIfAvailable();
+        if (routing != null && routing.isPinnedToPrimary()) {
+            return query.get();
+        }
+        return flight.execute(key, query);
     }
 
-    private BooleanExpression teamEq(String teamName) {
-        return teamName == null ? null : team.name.eq(teamName);
+    //msc로 합쳐지길 기다리는 search 호출 수 (테스트/모니터링용)
+    int waitingSearches(MemberSearchCondition msc) {
+        return searchFlight.waiting(searchKey(msc));
     }
 
-    private BooleanExpression ageGoeEq(Integer age) {
-        return age == null ? null : member.age.goe(age);
+    private MemberDTO copy(MemberDTO memberDTO) {
+        return new MemberDTO(memberDTO.getName(), memberDTO.getAge());
     }
 
-    private BooleanExpression ageLoeEq(Integer age) {
-        return age == null ? null : member.age.loe(age);
+    //호출 후 msc가 바뀌어도 key는 그대로이도록 값을 복사해둔다
+    private List<Object> searchKey(MemberSearchCondition msc, Object... extra) {
+
+        List<Object> key = new ArrayList<>(Arrays.asList(
+                msc.getMemberName(), msc.getTeamName(), msc.getAgeGoe(), msc.getAgeLoe()));
+        key.addAll(Arrays.asList(extra));
+        return key;
     }
 
 }
@@ -0,0 +1,84 @@
+package querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Component;
+import querydsl.dto.MemberDTO;
+import querydsl.dto.MemberSearchCondition;
+import querydsl.inspection.QueryInspectionContext;
+
+import javax.persistence.EntityManager;
+import java.util.function.Supplier;
+
+import static com.querydsl.core.types.ExpressionUtils.*;
+import static com.querydsl.core.types.Projections.*;
+import static querydsl.domain.QMember.*;
+import static querydsl.domain.QTeam.*;
+
+//MemberSearchCondition 검색/카운트 쿼리 > MemberRepositoryImpl과 MemberQueryWarmup이 같은 쿼리를 쓰도록 한곳에 모아둔다
+@Component
+class MemberSearchQueries {
+
+    private final JPAQueryFactory queryFactory;
+
+    MemberSearchQueries(EntityManager em) {
+        queryFactory = new JPAQueryFactory(em);
+    }
+
+    JPAQuery<MemberDTO> searchQuery(MemberSearchCondition msc) {
+
+        return joinTeamIfNeeded(queryFactory
+                .select(fields(MemberDTO.class, member.name, member.age))
+                .from(member), msc)
+                .where(conditionCheck(msc));
+    }
+
+    JPAQuery<Long> countQuery(MemberSearchCondition msc) {
+
+        return joinTeamIfNeeded(queryFactory
+                .select(member.count())
+                .from(member), msc)
+                .where(conditionCheck(msc));
+    }
+
+    //team.name 조건이 있을때만 team을 조인
+    <T> JPAQuery<T> joinTeamIfNeeded(JPAQuery<T> query, MemberSearchCondition msc) {
+        return msc.getTeamName() == null ? query : query.leftJoin(member.team, team);
+    }
+
+    //null인 조건은 무시 > 조건이 하나도 없으면 null (전체 조회)
+    Predicate conditionCheck(MemberSearchCondition msc) {
+
+        return allOf(
+                memberLk(msc.getMemberName()),
+                teamEq(msc.getTeamName()),
+                ageGoeEq(msc.getAgeGoe()),
+                ageLoeEq(msc.getAgeLoe()));
+    }
+
+    private BooleanExpression memberLk(String memberName) {
+        return memberName == null ? null : member.name.like(memberName);
+    }
+
+    private BooleanExpression teamEq(String teamName) {
+        return teamName == null ? null : team.name.eq(teamName);
+    }
+
+    private BooleanExpression ageGoeEq(Integer age) {
+        return age == null ? null : member.age.goe(age);
+    }
+
+    private BooleanExpression ageLoeEq(Integer age) {
+        return age == null ? null : member.age.loe(age);
+    }
+
+    //쿼리 검사가 켜져있으면 느린 쿼리 로그에 JPQL도 함께 남긴다
+    static <R> R inspect(JPAQuery<?> query, Supplier<R> execution) {
+
+        try (QueryInspectionContext.Scope ignored = QueryInspectionContext.open(query::toString)) {
+            return execution.get();
+        }
+    }
+}
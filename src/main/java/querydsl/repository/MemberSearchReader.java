@@ -0,0 +1,65 @@
+package querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import querydsl.dto.MemberDTO;
+import querydsl.dto.MemberSearchCondition;
+
+import java.time.Duration;
+import java.util.List;
+
+import static querydsl.repository.MemberSearchQueries.*;
+
+//합쳐지는 검색의 실제 조회 > leader만 이 트랜잭션을 시작하므로 기다리는 follower는 커넥션을 잡지 않는다
+@Component
+@Transactional(readOnly = true)
+class MemberSearchReader {
+
+    private final MemberSearchQueries queries;
+    private final MemberCountCache memberCountCache;
+
+    MemberSearchReader(MemberSearchQueries queries, MemberCountCache memberCountCache) {
+        this.queries = queries;
+        this.memberCountCache = memberCountCache;
+    }
+
+    public List<MemberDTO> search(MemberSearchCondition msc) {
+
+        JPAQuery<MemberDTO> query = queries.searchQuery(msc);
+        return inspect(query, query::fetch);
+    }
+
+    public Page<MemberDTO> pagingSearch2(MemberSearchCondition msc, Pageable pageable) {
+
+        JPAQuery<MemberDTO> query = queries.searchQuery(msc)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize());
+
+        List<MemberDTO> memberList = inspect(query, query::fetch);
+
+        JPAQuery<Long> countQuery = queries.countQuery(msc);
+
+        //검색된 list사이즈가 페이지의 사이즈보다 작거나 페이지가 1개일 경우
+        //카운트쿼리를 생략하고 list의 사이즈를 totalCount로 가져가는 방식
+        return PageableExecutionUtils.getPage(memberList, pageable, () -> inspect(countQuery, countQuery::fetchOne));
+    }
+
+    public Page<MemberDTO> pagingSearch2(MemberSearchCondition msc, Pageable pageable, Duration maxStaleness) {
+
+        JPAQuery<MemberDTO> query = queries.searchQuery(msc)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize());
+
+        List<MemberDTO> memberList = inspect(query, query::fetch);
+
+        JPAQuery<Long> countQuery = queries.countQuery(msc);
+
+        //pagingSearch2와 같은 생략 조건에 더해, 이전 페이지에서 세어둔 totalCount를 재사용
+        return PageableExecutionUtils.getPage(memberList, pageable,
+                () -> memberCountCache.getTotal(msc, maxStaleness, () -> inspect(countQuery, countQuery::fetchOne)));
+    }
+}
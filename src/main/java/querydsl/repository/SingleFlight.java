@@ -0,0 +1,58 @@
+package querydsl.repository;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 같은 key로 동시에 들어온 요청은 먼저 온 요청(leader)의 결과를 나눠받는다.
+ * 실행이 끝나면 key를 지우므로 결과를 캐시하지는 않는다.
+ */
+class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    V execute(K key, Supplier<V> supplier) {
+
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, created);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            V value = supplier.get();
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    //key의 leader를 기다리고 있는 호출 수 (테스트/모니터링용)
+    int waiting(K key) {
+        CompletableFuture<V> running = inFlight.get(key);
+        return running == null ? 0 : running.getNumberOfDependents();
+    }
+
+    private V await(CompletableFuture<V> running) {
+
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            //leader가 던진 예외를 그대로 전달
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package querydsl;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import querydsl.dto.MemberSearchCondition;
+import querydsl.repository.MemberRepository;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * JVM 시작부터 첫 검색 쿼리 결과까지의 시간을 잰다.
+ *
+ * <pre>
+ * 기본          : java -cp ... querydsl.TimeToFirstQueryHarness
+ * 빠른 기동 모드 : java -cp ... querydsl.TimeToFirstQueryHarness --spring.profiles.active=fast-startup
+ * warmup 대기   : -Dharness.first-query-delay-ms=500
+ *
+ * CDS 아카이브 (JDK 13+)
+ *   java -XX:ArchiveClassesAtExit=querydsl.jsa -cp ... querydsl.TimeToFirstQueryHarness
+ *   java -XX:SharedArchiveFile=querydsl.jsa -cp ... querydsl.TimeToFirstQueryHarness
+ * </pre>
+ */
+public class TimeToFirstQueryHarness {
+
+    public static void main(String[] args) throws Exception {
+
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long delay = Long.getLong("harness.first-query-delay-ms", 0);
+
+        long runStart = System.currentTimeMillis();
+        ConfigurableApplicationContext context = SpringApplication.run(QuerydslApplication.class, args);
+        long ready = System.currentTimeMillis();
+
+        Thread.sleep(delay);
+
+        long queryStart = System.currentTimeMillis();
+        int size = context.getBean(MemberRepository.class).search(new MemberSearchCondition()).size();
+        long firstQuery = System.currentTimeMillis();
+
+        context.close();
+
+        System.out.printf("jvm start -> run()       : %5d ms%n", runStart - jvmStart);
+        System.out.printf("run() -> context ready   : %5d ms%n", ready - runStart);
+        System.out.printf("first search (%d rows)    : %5d ms%n", size, firstQuery - queryStart);
+        System.out.printf("time to first query      : %5d ms (excluding %d ms delay)%n",
+                firstQuery - jvmStart - delay, delay);
+    }
+}
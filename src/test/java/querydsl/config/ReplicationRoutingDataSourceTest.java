@@ -0,0 +1,110 @@
+package querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationRoutingDataSourceTest {
+
+    HikariDataSource primary = h2("primary");
+    HikariDataSource replica1 = h2("replica1");
+    HikariDataSource replica2 = h2("replica2");
+
+    ReplicationRoutingDataSource routing;
+
+    @AfterEach
+    public void close() throws Exception {
+        routing.close();
+    }
+
+    @Test
+    public void routeByReadOnly() throws Exception {
+
+        //given
+        DataSource dataSource = routingDataSource(Duration.ZERO);
+
+        //when
+        String writeUrl = currentUrl(dataSource, false);
+        String readUrl = currentUrl(dataSource, true);
+
+        //then
+        assertEquals(writeUrl, "jdbc:h2:mem:primary");
+        assertTrue(readUrl.startsWith("jdbc:h2:mem:replica"));
+
+    }
+
+    @Test
+    public void leastLoadedReplica() throws Exception {
+
+        //given
+        DataSource dataSource = routingDataSource(Duration.ZERO);
+
+        //when
+        //replica1의 커넥션을 하나 잡아두면 읽기는 replica2로 간다
+        try (Connection busy = replica1.getConnection()) {
+            for (int i = 0; i < 4; i++) {
+
+                //then
+                assertEquals(currentUrl(dataSource, true), "jdbc:h2:mem:replica2");
+            }
+        }
+
+    }
+
+    @Test
+    public void readYourWrites() throws Exception {
+
+        //given
+        DataSource dataSource = routingDataSource(Duration.ofMinutes(1));
+
+        //when
+        String beforeWrite = currentUrl(dataSource, true);
+        currentUrl(dataSource, false);
+        String afterWrite = currentUrl(dataSource, true);
+
+        //then
+        assertTrue(beforeWrite.startsWith("jdbc:h2:mem:replica"));
+        assertEquals(afterWrite, "jdbc:h2:mem:primary");
+
+    }
+
+    private DataSource routingDataSource(Duration readYourWritesWindow) {
+
+        routing = new ReplicationRoutingDataSource(primary, Arrays.asList(replica1, replica2), readYourWritesWindow);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private String currentUrl(DataSource dataSource, boolean readOnly) {
+
+        TransactionTemplate template = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        template.setReadOnly(readOnly);
+
+        return template.execute(status -> {
+            try {
+                return DataSourceUtils.getConnection(dataSource).getMetaData().getURL();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static HikariDataSource h2(String name) {
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name);
+        dataSource.setUsername("sa");
+        return dataSource;
+    }
+}
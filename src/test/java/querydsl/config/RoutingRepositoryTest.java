@@ -0,0 +1,93 @@
+package querydsl.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import querydsl.domain.Member;
+import querydsl.domain.Team;
+import querydsl.dto.MemberDTO;
+import querydsl.dto.MemberSearchCondition;
+import querydsl.repository.MemberRepository;
+import querydsl.repository.TeamRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//primary와 replica 풀이 같은 H2 메모리 DB를 바라보므로 replica에서도 스키마와 데이터가 보인다
+@SpringBootTest(properties = {
+        "querydsl.routing.enabled=true",
+        "querydsl.routing.primary.url=jdbc:h2:mem:routing;DB_CLOSE_DELAY=-1",
+        "querydsl.routing.replicas[0].url=jdbc:h2:mem:routing;DB_CLOSE_DELAY=-1",
+        "querydsl.routing.replicas[1].url=jdbc:h2:mem:routing;DB_CLOSE_DELAY=-1",
+        "querydsl.routing.read-your-writes-window=0s",
+        "querydsl.age-increment.flush-interval-ms=3600000",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class RoutingRepositoryTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    ReplicationRoutingDataSource routingDataSource;
+
+    @AfterEach
+    public void clear() throws Exception {
+        memberRepository.deleteAllInBatch();
+        teamRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void routeRepositoryCalls() throws Exception {
+
+        //given
+        long primaryBefore = primaryCount();
+        long replicaBefore = replicaCount();
+
+        //when : 쓰기
+        Team team1 = teamRepository.save(new Team("team1"));
+        Member member1 = memberRepository.save(new Member("member1", 10, team1));
+
+        //then
+        assertTrue(primaryCount() > primaryBefore);
+        assertEquals(replicaCount(), replicaBefore);
+
+        //when : 읽기
+        long primaryAfterWrite = primaryCount();
+
+        MemberSearchCondition msc = new MemberSearchCondition();
+        msc.setMemberName("member1");
+        List<MemberDTO> memberList = memberRepository.search(msc);
+        Page<MemberDTO> memberPage = memberRepository.pagingSearch(msc, PageRequest.of(0, 10));
+
+        //then
+        assertEquals(memberList.size(), 1);
+        assertEquals(memberPage.getTotalElements(), 1);
+        assertEquals(primaryCount(), primaryAfterWrite);
+        assertTrue(replicaCount() >= replicaBefore + 2);
+
+        //when : 벌크 업데이트
+        long replicaAfterRead = replicaCount();
+        memberRepository.incrementAge(member1.getId(), 1);
+        memberRepository.flushAgeIncrements();
+
+        //then
+        assertTrue(primaryCount() > primaryAfterWrite);
+        assertEquals(replicaCount(), replicaAfterRead);
+        assertEquals(memberRepository.findById(member1.getId()).get().getAge(), 11);
+
+    }
+
+    private long primaryCount() {
+        return routingDataSource.getRoutedCount(ReplicationRoutingDataSource.PRIMARY);
+    }
+
+    private long replicaCount() {
+        return routingDataSource.getRoutedCount("replica0") + routingDataSource.getRoutedCount("replica1");
+    }
+}
@@ -0,0 +1,125 @@
+package querydsl.inspection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlowQueryRecorderTest {
+
+    HikariDataSource h2 = new HikariDataSource();
+    SlowQueryRecorder recorder;
+
+    @AfterEach
+    public void close() throws Exception {
+        recorder.shutdown();
+        h2.close();
+    }
+
+    @Test
+    public void recordSlowestShapes() throws Exception {
+
+        //given
+        InspectingDataSource dataSource = inspectingDataSource(2);
+
+        //when
+        try (Connection con = dataSource.getConnection(); Statement st = con.createStatement()) {
+            st.execute("create table member (member_id bigint primary key, name varchar(255))");
+
+            for (int i = 0; i < 3; i++) {
+                try (PreparedStatement ps = con.prepareStatement("select * from member where name = ?")) {
+                    ps.setString(1, "member" + i);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                    }
+                }
+            }
+        }
+
+        //then
+        List<SlowQuery> slowQueryList = recorder.getSlowest();
+        assertEquals(slowQueryList.size(), 2);
+
+        SlowQuery select = slowQueryList.stream()
+                .filter(slowQuery -> slowQuery.getSql().startsWith("select"))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+        assertEquals(select.getCount(), 3);
+        assertEquals(select.getLastParameters(), "[member2]");
+
+    }
+
+    @Test
+    public void explainOnH2() throws Exception {
+
+        //given
+        InspectingDataSource dataSource = inspectingDataSource(20);
+
+        //when
+        try (Connection con = dataSource.getConnection(); Statement st = con.createStatement()) {
+            st.execute("create table team (team_id bigint primary key, name varchar(255))");
+            st.executeQuery("select * from team").close();
+        }
+
+        //then
+        //EXPLAIN은 별도 스레드에서 채워진다
+        String plan = null;
+        for (int i = 0; i < 50 && (plan == null || plan.isEmpty()); i++) {
+            Thread.sleep(100);
+            plan = recorder.getSlowest().stream()
+                    .filter(slowQuery -> slowQuery.getSql().startsWith("select"))
+                    .map(SlowQuery::getPlan)
+                    .findFirst()
+                    .orElse(null);
+        }
+        assertNotNull(plan);
+        assertTrue(plan.toUpperCase().contains("TEAM"));
+
+    }
+
+    @Test
+    public void stopJpqlCaptureOnShutdown() throws Exception {
+
+        //given
+        inspectingDataSource(1);
+        String captured;
+        try (QueryInspectionContext.Scope ignored = QueryInspectionContext.open(() -> "select m from Member m")) {
+            captured = QueryInspectionContext.currentJpql();
+        }
+
+        //when
+        recorder.shutdown();
+
+        //then
+        //닫힌 뒤에는 JPQL 문자열을 만들지 않는다
+        assertEquals(captured, "select m from Member m");
+        try (QueryInspectionContext.Scope ignored = QueryInspectionContext.open(() -> {
+            throw new AssertionError("jpql built after shutdown");
+        })) {
+            assertNull(QueryInspectionContext.currentJpql());
+        }
+
+    }
+
+    private InspectingDataSource inspectingDataSource(int topN) {
+
+        h2.setJdbcUrl("jdbc:h2:mem:inspection" + topN);
+        h2.setUsername("sa");
+
+        QueryInspectionProperties properties = new QueryInspectionProperties();
+        properties.setSlowThreshold(Duration.ZERO);
+        properties.setTopN(topN);
+
+        recorder = new SlowQueryRecorder(properties);
+        recorder.setExplainDataSource(h2);
+        return new InspectingDataSource(h2, recorder);
+    }
+}
@@ -0,0 +1,303 @@
+package querydsl.load;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import querydsl.QuerydslApplication;
+import querydsl.domain.Member;
+import querydsl.domain.Team;
+import querydsl.dto.MemberSearchCondition;
+import querydsl.repository.MemberCountCache;
+import querydsl.repository.MemberRepository;
+import querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static querydsl.domain.QMember.*;
+import static querydsl.domain.QTeam.*;
+
+/**
+ * 내장 H2에 데이터를 채우고 MemberRepository에 동시 부하를 걸어 처리량과 지연시간 분포를 출력한다.
+ *
+ * <pre>
+ * java -cp ... querydsl.load.MemberLoadGenerator
+ *   -Dload.members=20000        member 수
+ *   -Dload.teams=200            team 수
+ *   -Dload.team-skew=1.2        team 크기 쏠림 (zipf)
+ *   -Dload.names=2000           member 이름 종류 수
+ *   -Dload.threads=64           동시 실행 스레드 수 (JDK 21 이상이면 virtual thread)
+ *   -Dload.warmup-seconds=5
+ *   -Dload.seconds=30
+ *   -Dload.mix=search:50,paging:30,fetch-join:15,bulk:5
+ * </pre>
+ *
+ * 지연시간 기록에 HdrHistogram(org.hdrhistogram:HdrHistogram, test scope)을 쓰므로 테스트 의존성에 명시적으로 선언되어 있어야 한다.
+ * 실패한 요청도 지연시간에 포함하고, 연산별 첫 실패는 스택트레이스와 함께 출력한다.
+ */
+public class MemberLoadGenerator {
+
+    enum Operation {
+        SEARCH, PAGING, FETCH_JOIN, BULK
+    }
+
+    private final int memberCount = Integer.getInteger("load.members", 20_000);
+    private final int teamCount = Integer.getInteger("load.teams", 200);
+    private final double teamSkew = Double.parseDouble(System.getProperty("load.team-skew", "1.2"));
+    private final int nameCardinality = Integer.getInteger("load.names", 2_000);
+    private final int threads = Integer.getInteger("load.threads", 64);
+    private final int warmupSeconds = Integer.getInteger("load.warmup-seconds", 5);
+    private final int seconds = Integer.getInteger("load.seconds", 30);
+    private final Map<Operation, Integer> mix = parseMix(System.getProperty("load.mix", "search:50,paging:30,fetch-join:15,bulk:5"));
+
+    private final ZipfSampler teamSampler = new ZipfSampler(teamCount, teamSkew);
+    private final ZipfSampler nameSampler = new ZipfSampler(nameCardinality, 1.0);
+    private final List<Long> teamIdList = new ArrayList<>();
+
+    private final MemberRepository memberRepository;
+    private final TeamRepository teamRepository;
+    private final MemberCountCache memberCountCache;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate writeTx;
+    private final TransactionTemplate readTx;
+
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicBoolean> failureLogged = new EnumMap<>(Operation.class);
+
+    //측정 구간의 실제 경과 시간 > 처리량 계산에 쓴다
+    private long elapsedNanos;
+
+    public static void main(String[] args) throws Exception {
+
+        String[] bootArgs = {
+                "--spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.org.hibernate.SQL=warn"
+        };
+        String[] allArgs = new String[bootArgs.length + args.length];
+        System.arraycopy(bootArgs, 0, allArgs, 0, bootArgs.length);
+        System.arraycopy(args, 0, allArgs, bootArgs.length, args.length);
+
+        try (ConfigurableApplicationContext context = SpringApplication.run(QuerydslApplication.class, allArgs)) {
+            MemberLoadGenerator generator = new MemberLoadGenerator(context);
+            generator.seed();
+            generator.run(generator.warmupSeconds);
+            generator.reset();
+            generator.elapsedNanos = generator.run(generator.seconds);
+            generator.report();
+        }
+    }
+
+    private MemberLoadGenerator(ConfigurableApplicationContext context) {
+
+        memberRepository = context.getBean(MemberRepository.class);
+        teamRepository = context.getBean(TeamRepository.class);
+        memberCountCache = context.getBean(MemberCountCache.class);
+        queryFactory = new JPAQueryFactory(context.getBean(EntityManager.class));
+
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        writeTx = new TransactionTemplate(transactionManager);
+        readTx = new TransactionTemplate(transactionManager);
+        readTx.setReadOnly(true);
+
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(3));
+            errors.put(operation, new AtomicLong());
+            failureLogged.put(operation, new AtomicBoolean());
+        }
+    }
+
+    //team 크기는 zipf 분포, 이름은 nameCardinality 종류 중에서 zipf 분포
+    private void seed() {
+
+        long start = System.currentTimeMillis();
+
+        List<Team> teamList = new ArrayList<>();
+        for (int i = 0; i < teamCount; i++) {
+            teamList.add(new Team("team" + i));
+        }
+        writeTx.executeWithoutResult(status -> teamRepository.saveAll(teamList));
+        teamList.forEach(t -> teamIdList.add(t.getId()));
+
+        for (int from = 0; from < memberCount; from += 1000) {
+            int to = Math.min(from + 1000, memberCount);
+            writeTx.executeWithoutResult(status -> {
+                List<Member> memberList = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    Team t = teamList.get(teamSampler.next());
+                    memberList.add(new Member("member" + nameSampler.next(), ThreadLocalRandom.current().nextInt(80), t));
+                }
+                memberRepository.saveAll(memberList);
+            });
+        }
+        teamList.forEach(t -> t.getMemberList().clear());
+
+        System.out.printf("seeded %d teams, %d members in %d ms%n",
+                teamCount, memberCount, System.currentTimeMillis() - start);
+    }
+
+    //실제 경과 시간(ns)을 돌려준다
+    private long run(int durationSeconds) throws InterruptedException {
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService executor = newExecutor(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    execute(nextOperation());
+                }
+            });
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(durationSeconds + 60L, TimeUnit.SECONDS)) {
+            //deadline 이후에도 끝나지 않은 요청이 있으면 중단시키고 알린다
+            System.err.printf("load run overran %d s by more than 60 s, interrupting remaining workers%n", durationSeconds);
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void execute(Operation operation) {
+
+        long start = System.nanoTime();
+        try {
+            switch (operation) {
+                case SEARCH:
+                    memberRepository.search(randomCondition());
+                    break;
+                case PAGING:
+                    memberRepository.pagingSearch2(randomCondition(), PageRequest.of(ThreadLocalRandom.current().nextInt(5), 20));
+                    break;
+                case FETCH_JOIN:
+                    String teamName = "team" + teamSampler.next();
+                    readTx.executeWithoutResult(status -> queryFactory
+                            .selectFrom(member)
+                            .join(member.team, team).fetchJoin()
+                            .where(team.name.eq(teamName))
+                            .fetch());
+                    break;
+                case BULK:
+                    Long teamId = teamIdList.get(teamSampler.next());
+                    writeTx.executeWithoutResult(status -> {
+                        queryFactory
+                                .update(member)
+                                .set(member.age, member.age.add(1))
+                                .where(member.team.id.eq(teamId))
+                                .execute();
+                        //벌크 업데이트는 엔티티 콜백을 타지 않는다
+                        memberCountCache.invalidate();
+                    });
+                    break;
+            }
+        } catch (RuntimeException e) {
+            errors.get(operation).incrementAndGet();
+            if (failureLogged.get(operation).compareAndSet(false, true)) {
+                System.err.printf("first %s failure%n", operation);
+                e.printStackTrace();
+            }
+        } finally {
+            //실패도 지연시간 분포에 포함 > 빠르게 실패하는 요청이 빠진 채로 지연시간이 좋아 보이지 않도록
+            histograms.get(operation).recordValue(System.nanoTime() - start);
+        }
+    }
+
+    private MemberSearchCondition randomCondition() {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        MemberSearchCondition msc = new MemberSearchCondition();
+        if (random.nextInt(3) == 0) {
+            msc.setMemberName("member" + nameSampler.next() + "%");
+        }
+        if (random.nextBoolean()) {
+            msc.setTeamName("team" + teamSampler.next());
+        }
+        if (random.nextBoolean()) {
+            int ageGoe = random.nextInt(70);
+            msc.setAgeGoe(ageGoe);
+            msc.setAgeLoe(ageGoe + 10);
+        }
+        return msc;
+    }
+
+    private Operation nextOperation() {
+
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private void reset() {
+        histograms.values().forEach(Histogram::reset);
+        errors.values().forEach(e -> e.set(0));
+        failureLogged.values().forEach(f -> f.set(false));
+    }
+
+    private void report() {
+
+        double elapsedSeconds = elapsedNanos / 1_000_000_000.0;
+
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "ops/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+
+        long totalCount = 0;
+        long totalErrors = 0;
+        for (Map.Entry<Operation, Histogram> entry : histograms.entrySet()) {
+            Histogram h = entry.getValue();
+            long errorCount = errors.get(entry.getKey()).get();
+            totalCount += h.getTotalCount();
+            totalErrors += errorCount;
+            System.out.printf("%-10s %10d %10d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                    entry.getKey(), h.getTotalCount(), errorCount, h.getTotalCount() / elapsedSeconds,
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(99)),
+                    millis(h.getValueAtPercentile(99.9)), millis(h.getMaxValue()));
+        }
+        System.out.printf("total %d ops, %.1f ops/s, %d errors, %d threads, %.1f s%n",
+                totalCount, totalCount / elapsedSeconds, totalErrors, threads, elapsedSeconds);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    //JDK 21 이상이면 virtual thread, 아니면 고정 크기 풀
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String token : mix.split(",")) {
+            String[] pair = token.trim().split(":");
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase().replace('-', '_')), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,29 @@
+package querydsl.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+//0..n-1 중 하나를 1/(k+1)^skew 비율로 뽑는다 > skew가 클수록 앞쪽 몇개에 몰린다
+class ZipfSampler {
+
+    private final double[] cumulative;
+
+    ZipfSampler(int n, double skew) {
+
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    int next() {
+
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
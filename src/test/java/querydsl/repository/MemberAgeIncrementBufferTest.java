@@ -0,0 +1,111 @@
+package querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import querydsl.domain.Member;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//flush는 별도 트랜잭션으로 커밋하므로 테스트 트랜잭션 없이 커밋된 데이터로 실행
+//스케줄 flush가 끼어들지 않도록 주기를 늘려둔다
+@SpringBootTest(properties = "querydsl.age-increment.flush-interval-ms=3600000")
+class MemberAgeIncrementBufferTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void clear() throws Exception {
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void incrementAge() throws Exception {
+
+        //given
+        Member member = memberRepository.save(new Member("member1", 30));
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            memberRepository.incrementAge(member.getId(), 1);
+        }
+        memberRepository.incrementAge(member.getId(), -3);
+        memberRepository.flushAgeIncrements();
+
+        //then
+        assertEquals(memberRepository.findById(member.getId()).get().getAge(), 37);
+
+    }
+
+    @Test
+    public void keepIncrementsWhenCallerRollsBack() throws Exception {
+
+        //given
+        Member member = memberRepository.save(new Member("member1", 30));
+        memberRepository.incrementAge(member.getId(), 5);
+
+        //when
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.executeWithoutResult(status -> {
+            memberRepository.flushAgeIncrements();
+            status.setRollbackOnly();
+        });
+
+        //then
+        assertEquals(memberRepository.findById(member.getId()).get().getAge(), 35);
+
+    }
+
+    @Test
+    public void dropIncrementsWhenCallerRollsBack() throws Exception {
+
+        //given
+        Member member = memberRepository.save(new Member("member1", 30));
+
+        //when
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.executeWithoutResult(status -> {
+            memberRepository.incrementAge(member.getId(), 5);
+            status.setRollbackOnly();
+        });
+        memberRepository.flushAgeIncrements();
+
+        //then
+        assertEquals(memberRepository.findById(member.getId()).get().getAge(), 30);
+
+    }
+
+    @Test
+    public void failingIncrementDoesNotBlockOthers() throws Exception {
+
+        //given
+        Member overflow = memberRepository.save(new Member("member1", Integer.MAX_VALUE - 1));
+        Member member = memberRepository.save(new Member("member2", 30));
+
+        //when
+        //같은 증가분이라 한 UPDATE로 묶이지만, overflow 되는 member만 실패해야 한다
+        memberRepository.incrementAge(overflow.getId(), 5);
+        memberRepository.incrementAge(member.getId(), 5);
+        memberRepository.flushAgeIncrements();
+
+        //then
+        assertEquals(memberRepository.findById(member.getId()).get().getAge(), 35);
+        assertEquals(memberRepository.findById(overflow.getId()).get().getAge(), Integer.MAX_VALUE - 1);
+
+        //계속 실패하면 재시도를 멈춘다
+        for (int i = 1; i < MemberAgeIncrementBuffer.MAX_FLUSH_ATTEMPTS; i++) {
+            memberRepository.flushAgeIncrements();
+        }
+        memberRepository.incrementAge(member.getId(), 1);
+        memberRepository.flushAgeIncrements();
+        assertEquals(memberRepository.findById(member.getId()).get().getAge(), 36);
+        assertEquals(memberRepository.findById(overflow.getId()).get().getAge(), Integer.MAX_VALUE - 1);
+
+    }
+}
@@ -0,0 +1,141 @@
+package querydsl.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import querydsl.domain.Member;
+import querydsl.domain.Team;
+import querydsl.dto.MemberDTO;
+import querydsl.dto.MemberSearchCondition;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//캐시는 커밋된 데이터에 대해서만 쓰이므로 테스트 트랜잭션 없이 실행
+@SpringBootTest
+class MemberCountCacheTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    MemberCountCache memberCountCache;
+    @Autowired
+    EntityManagerFactory emf;
+
+    Statistics statistics;
+
+    @BeforeEach
+    public void init() throws Exception {
+
+        Team team1 = teamRepository.save(new Team("team1"));
+        for (int i = 1; i <= 5; i++) {
+            memberRepository.save(new Member("member" + i, i * 5, team1));
+        }
+
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void clear() throws Exception {
+
+        statistics.setStatisticsEnabled(false);
+        memberRepository.deleteAllInBatch();
+        teamRepository.deleteAllInBatch();
+        //벌크 delete는 엔티티 콜백을 타지 않는다
+        memberCountCache.invalidateAll();
+    }
+
+    @Test
+    public void reuseTotalAcrossPages() throws Exception {
+
+        //given
+        MemberSearchCondition msc = new MemberSearchCondition();
+        msc.setMemberName("%member%");
+        Duration maxStaleness = Duration.ofMinutes(1);
+
+        //when
+        Page<MemberDTO> firstPage = memberRepository.pagingSearch2(msc, PageRequest.of(0, 2), maxStaleness);
+        long firstPageQueries = statistics.getQueryExecutionCount();
+
+        Page<MemberDTO> secondPage = memberRepository.pagingSearch2(msc, PageRequest.of(1, 2), maxStaleness);
+        long secondPageQueries = statistics.getQueryExecutionCount() - firstPageQueries;
+
+        //then
+        //첫 페이지는 content + count, 다음 페이지는 content만
+        assertEquals(firstPageQueries, 2);
+        assertEquals(secondPageQueries, 1);
+        assertEquals(firstPage.getTotalElements(), 5);
+        assertEquals(secondPage.getTotalElements(), 5);
+
+    }
+
+    @Test
+    public void keyOnExactCondition() throws Exception {
+
+        //given
+        Duration maxStaleness = Duration.ofMinutes(1);
+        MemberSearchCondition msc = new MemberSearchCondition();
+        msc.setMemberName("%member%");
+        memberRepository.pagingSearch2(msc, PageRequest.of(0, 2), maxStaleness);
+
+        //when
+        //뒤에 공백이 붙은 like는 다른 조건 > 캐시된 5를 쓰면 안된다
+        MemberSearchCondition trailingSpace = new MemberSearchCondition();
+        trailingSpace.setMemberName("%member% ");
+        Page<MemberDTO> memberPage = memberRepository.pagingSearch2(trailingSpace, PageRequest.of(1, 2), maxStaleness);
+
+        //then
+        assertEquals(memberPage.getTotalElements(), 0);
+
+    }
+
+    @Test
+    public void invalidateAfterCommit() throws Exception {
+
+        //given
+        MemberSearchCondition msc = new MemberSearchCondition();
+        msc.setMemberName("%member%");
+        Duration maxStaleness = Duration.ofMinutes(1);
+        memberRepository.pagingSearch2(msc, PageRequest.of(0, 2), maxStaleness);
+
+        //when
+        memberRepository.save(new Member("member6", 30));
+        Page<MemberDTO> afterSave = memberRepository.pagingSearch2(msc, PageRequest.of(1, 2), maxStaleness);
+
+        //then
+        assertEquals(afterSave.getTotalElements(), 6);
+
+    }
+
+    @Test
+    public void invalidateOnTeamRename() throws Exception {
+
+        //given
+        MemberSearchCondition msc = new MemberSearchCondition();
+        msc.setTeamName("team1");
+        Duration maxStaleness = Duration.ofMinutes(1);
+        memberRepository.pagingSearch2(msc, PageRequest.of(0, 2), maxStaleness);
+
+        //when
+        Team team1 = teamRepository.findAll().get(0);
+        team1.setName("renamed");
+        teamRepository.save(team1);
+        Page<MemberDTO> afterRename = memberRepository.pagingSearch2(msc, PageRequest.of(1, 2), maxStaleness);
+
+        //then
+        assertEquals(afterRename.getTotalElements(), 0);
+
+    }
+}
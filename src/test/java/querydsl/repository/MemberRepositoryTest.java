@@ -1,5 +1,8 @@
 package querydsl.repository;
 
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,19 +15,30 @@ import querydsl.domain.Member;
 import querydsl.domain.Team;
 import querydsl.dto.MemberDTO;
 import querydsl.dto.MemberSearchCondition;
+import querydsl.dto.MemberTeamDTO;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static querydsl.repository.MemberFetchPlan.Attribute.*;
 
 @SpringBootTest
 @Transactional
 class MemberRepositoryTest {
 
+    @PersistenceContext
+    EntityManager em;
     @Autowired
     MemberRepository memberRepository;
     @Autowired
     TeamRepository teamRepository;
+    @Autowired
+    EntityManagerFactory emf;
 
     @BeforeEach
     public void init() throws Exception {
@@ -80,5 +94,92 @@ class MemberRepositoryTest {
 
     }
 
+    @Test
+    public void searchAll() throws Exception {
+
+        //given
+        MemberSearchCondition msc1 = new MemberSearchCondition();
+        msc1.setMemberName("member1");
+
+        MemberSearchCondition msc2 = new MemberSearchCondition();
+        msc2.setTeamName("team2");
+        msc2.setAgeLoe(20);
+
+        MemberSearchCondition msc3 = new MemberSearchCondition();
+        msc3.setMemberName("%member%");
+        msc3.setAgeGoe(10);
+
+        //when
+        List<List<MemberDTO>> resultList = memberRepository.searchAll(Arrays.asList(msc1, msc2, msc3, msc1));
+
+        //then
+        assertEquals(resultList.size(), 4);
+        assertEquals(resultList.get(0), memberRepository.search(msc1));
+        assertEquals(resultList.get(1), memberRepository.search(msc2));
+        assertEquals(resultList.get(2), memberRepository.search(msc3));
+        assertEquals(resultList.get(3).size(), 1);
+
+    }
+
+    @Test
+    public void searchProjection() throws Exception {
+
+        //given
+        MemberSearchCondition msc = new MemberSearchCondition();
+        msc.setTeamName("team1");
+
+        //when
+        List<MemberTeamDTO> memberList = memberRepository.searchProjection(msc, MemberFetchPlan.of(NAME, TEAM_NAME));
+
+        //then
+        assertEquals(memberList.size(), 2);
+        assertEquals(memberList.get(0).getTeamName(), "team1");
+        assertNull(memberList.get(0).getAge());
+        assertThrows(IllegalArgumentException.class,
+                () -> memberRepository.searchProjection(msc, MemberFetchPlan.of(TEAM)));
+
+    }
+
+    @Test
+    public void searchEntities() throws Exception {
+
+        //given
+        em.flush();
+        em.clear();
+        MemberSearchCondition msc = new MemberSearchCondition();
+        msc.setAgeGoe(10);
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        //when
+        List<Member> memberList2 = memberRepository.searchEntities(msc, MemberFetchPlan.of(NAME));
+        em.clear();
+
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        List<Member> memberList;
+        long statementCount;
+        try {
+            memberList = memberRepository.searchEntities(msc, MemberFetchPlan.of(NAME, TEAM_MEMBERS));
+            statementCount = statistics.getPrepareStatementCount();
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+
+        //then
+        //NAME만 요청하면 team은 초기화되지 않은 프록시로 남는다
+        assertEquals(memberList2.size(), 4);
+        for (Member m : memberList2) {
+            assertFalse(Hibernate.isInitialized(m.getTeam()));
+        }
+
+        assertEquals(memberList.size(), 4);
+        for (Member m : memberList) {
+            assertTrue(Hibernate.isInitialized(m.getTeam()));
+            assertTrue(Hibernate.isInitialized(m.getTeam().getMemberList()));
+        }
+        //team fetch join 1번 + 두 team의 memberList를 in절로 한번에 (@BatchSize)
+        assertEquals(statementCount, 2);
+
+    }
 
-}
\ No newline at end of file
+}
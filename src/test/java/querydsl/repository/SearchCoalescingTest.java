@@ -0,0 +1,100 @@
+package querydsl.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import querydsl.domain.Member;
+import querydsl.domain.Team;
+import querydsl.dto.MemberDTO;
+import querydsl.dto.MemberSearchCondition;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//커넥션 풀이 1개뿐이고 그 커넥션을 테스트가 잡고 있어도
+//follower는 커넥션 없이 leader를 기다려야 한다 > 트랜잭션 밖에서 합쳐지는지 확인
+@SpringBootTest(properties = "spring.datasource.hikari.maximum-pool-size=1")
+class SearchCoalescingTest {
+
+    static final int CALLERS = 8;
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    MemberRepositoryImpl memberRepositoryImpl;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    EntityManagerFactory emf;
+
+    Statistics statistics;
+
+    @BeforeEach
+    public void init() throws Exception {
+
+        Team team1 = teamRepository.save(new Team("team1"));
+        for (int i = 1; i <= 5; i++) {
+            memberRepository.save(new Member("member" + i, i * 5, team1));
+        }
+
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void clear() throws Exception {
+
+        statistics.setStatisticsEnabled(false);
+        memberRepository.deleteAllInBatch();
+        teamRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void coalesceConcurrentSearches() throws Exception {
+
+        //given
+        MemberSearchCondition msc = new MemberSearchCondition();
+        msc.setMemberName("member%");
+        MemberRepositoryImpl target = AopTestUtils.getTargetObject(memberRepositoryImpl);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+        //when
+        List<Future<List<MemberDTO>>> futureList = new ArrayList<>();
+        try (Connection held = dataSource.getConnection()) {
+            //leader는 커넥션을 기다리고, 나머지는 leader를 기다린다
+            for (int i = 0; i < CALLERS; i++) {
+                futureList.add(executor.submit(() -> memberRepository.search(msc)));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (target.waitingSearches(msc) < CALLERS - 1) {
+                assertTrue(System.nanoTime() < deadline, "followers did not join the leader");
+                Thread.sleep(1);
+            }
+        }
+
+        //then
+        for (Future<List<MemberDTO>> future : futureList) {
+            assertEquals(future.get(10, TimeUnit.SECONDS).size(), 5);
+        }
+        assertEquals(statistics.getQueryExecutionCount(), 1);
+        executor.shutdown();
+
+    }
+}
@@ -0,0 +1,110 @@
+package querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    static final int FOLLOWERS = 7;
+
+    @Test
+    public void coalesceConcurrentCalls() throws Exception {
+
+        //given
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(FOLLOWERS + 1);
+
+        //when
+        List<Future<Integer>> futureList = new ArrayList<>();
+        futureList.add(executor.submit(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            await(release);
+            return executions.incrementAndGet();
+        })));
+        started.await();
+
+        for (int i = 0; i < FOLLOWERS; i++) {
+            futureList.add(executor.submit(() -> singleFlight.execute("key", executions::incrementAndGet)));
+        }
+        awaitFollowers(singleFlight, "key");
+        release.countDown();
+
+        //then
+        for (Future<Integer> future : futureList) {
+            assertEquals(future.get(5, TimeUnit.SECONDS), 1);
+        }
+        assertEquals(executions.get(), 1);
+
+        //끝난 요청은 다시 실행된다
+        assertEquals(singleFlight.execute("key", executions::incrementAndGet), 2);
+        executor.shutdown();
+
+    }
+
+    @Test
+    public void propagateLeaderException() throws Exception {
+
+        //given
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(FOLLOWERS + 1);
+
+        //when
+        List<Future<Integer>> futureList = new ArrayList<>();
+        futureList.add(executor.submit(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("leader failed");
+        })));
+        started.await();
+
+        for (int i = 0; i < FOLLOWERS; i++) {
+            futureList.add(executor.submit(() -> singleFlight.execute("key", () -> 1)));
+        }
+        awaitFollowers(singleFlight, "key");
+        release.countDown();
+
+        //then
+        //leader와 follower 모두 leader의 예외를 그대로 받는다
+        for (Future<Integer> future : futureList) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals(e.getCause().getMessage(), "leader failed");
+        }
+        executor.shutdown();
+
+    }
+
+    //follower들이 모두 leader의 결과를 기다리기 시작할때까지 대기
+    private static void awaitFollowers(SingleFlight<String, Integer> singleFlight, String key) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (singleFlight.waiting(key) < FOLLOWERS) {
+            assertTrue(System.nanoTime() < deadline, "followers did not join the leader");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}